@@ -1,5 +1,6 @@
 package me.angelvc.saes.scraper;
 
+import me.angelvc.saes.scraper.captcha.CaptchaSolver;
 import me.angelvc.saes.scraper.exceptions.SessionExpiredException;
 import me.angelvc.saes.scraper.models.*;
 import me.angelvc.saes.scraper.util.Pair;
@@ -10,23 +11,39 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 
 
 public class SAEScraper implements Serializable {
 
     private static final String NULL_DOCUMENT_MESSAGE = "El documento no ha sido inicializado";
+    private static final String SESSION_CHANGED_MESSAGE = "La sesión cambió mientras se realizaba la petición";
+    private static final String KARDEX_PAGE = "kardexPage";
+    // error shown by the login form when the captcha text does not match the image
+    private static final Pattern CAPTCHA_ERROR = Pattern.compile(
+            "captcha|c[oó]digo de (la imagen|verificaci[oó]n)|texto de la imagen", Pattern.CASE_INSENSITIVE);
     private static final String USER_AGENT = "Chrome/81.0.4044.138";
 
     private String BASE_URL;
     private Map<String, String> cookies;
     private Document workingDocument;  // stores login page and home page once the user is logged in
+    private transient Map<String, Call> inFlight;  // page requests running on this session
+    private transient long generation;  // changes every time the session is reset or a new login page is loaded
 
     private static SAEScraper scraper;
 
@@ -34,6 +51,7 @@ public class SAEScraper implements Serializable {
         cookies = new HashMap<>();
         workingDocument = null;
         BASE_URL = schoolUrl;
+        inFlight = new ConcurrentHashMap<>();
     }
 
     /**
@@ -41,22 +59,38 @@ public class SAEScraper implements Serializable {
      * @param school Escuela de la que se desea obtener la información
      * @return Instancia del scraper
      */
-    public static SAEScraper getInstance(School school) {
+    public static synchronized SAEScraper getInstance(School school) {
         if (school == null)
             throw new IllegalArgumentException("El parámetro school no puede ser null");
 
         if (scraper == null)
             scraper = new SAEScraper(school.url);
 
-        if (!school.url.equals(scraper.BASE_URL)){
-            scraper.cookies.clear();
-            scraper.workingDocument = null;
-            scraper.BASE_URL = school.url;
+        synchronized (scraper) {
+            if (!school.url.equals(scraper.BASE_URL)) {
+                scraper.cookies.clear();
+                scraper.workingDocument = null;
+                scraper.BASE_URL = school.url;
+                scraper.generation++;
+            }
         }
 
         return scraper;
     }
 
+    /**
+     * Crea una sesión independiente de la instancia obtenida con {@link #getInstance(School)},
+     * útil para mantener sesiones de varios alumnos al mismo tiempo
+     * @param school Escuela de la que se desea obtener la información
+     * @return Nueva instancia del scraper
+     */
+    public static SAEScraper newSession(School school) {
+        if (school == null)
+            throw new IllegalArgumentException("El parámetro school no puede ser null");
+
+        return new SAEScraper(school.url);
+    }
+
     /**
      * Recarga el documento de trabajo con las cookies almacenadas
      * @param timeoutSeconds La cantidad de segundos a esperar al realizar la peticion
@@ -64,15 +98,18 @@ public class SAEScraper implements Serializable {
      * @throws SessionExpiredException Si la sesión expiró
      */
     public void reload(int timeoutSeconds) throws IOException, SessionExpiredException {
+        Session session = snapshot();
+
         // mainUrl, available for logged in users
-        String mainUrl = BASE_URL + "alumnos/default.aspx";
+        String mainUrl = session.baseUrl + "alumnos/default.aspx";
         Connection connection = Jsoup.connect(mainUrl)
-                .cookies(cookies)
+                .cookies(session.cookies)
                 .method(Connection.Method.GET)
                 .userAgent(USER_AGENT)
                 .timeout(timeoutSeconds * 1000);
         Connection.Response response = connection.execute();
-        workingDocument = response.parse();
+        Document document = response.parse();
+        commit(session, () -> workingDocument = document);
 
         checkSessionState(mainUrl, response.url().toString());
     }
@@ -91,17 +128,25 @@ public class SAEScraper implements Serializable {
      * Al llamar a este metodo se limpian las cookies almacenadas previamente.
      * @return Arreglo de bytes de la imagen captcha
      * @throws IOException Si existe un error de conexión
+     * @throws IllegalStateException Si la sesión cambió de escuela o se cargó otra página de inicio de sesión
+     * mientras se realizaba la petición
      */
     public byte[] loadLoginPage() throws IOException {
-        Connection connection = Jsoup.connect(BASE_URL).method(Connection.Method.GET);
+        Session session = snapshot();
+        Connection connection = Jsoup.connect(session.baseUrl).method(Connection.Method.GET);
         Connection.Response response = connection.execute();
-        workingDocument = response.parse();
+        Document loginDocument = response.parse();
+        Map<String, String> loginCookies = response.cookies();
 
         // delete previous stored cookies and save the cookies from the new response
-        cookies.clear();
-        cookies.putAll(response.cookies());
-
-        Element captcha = workingDocument.selectFirst("#c_default_ctl00_leftcolumn_loginuser_logincaptcha_CaptchaImage");
+        commit(session, () -> {
+            workingDocument = loginDocument;
+            cookies.clear();
+            cookies.putAll(loginCookies);
+            generation++;
+        });
+
+        Element captcha = loginDocument.selectFirst("#c_default_ctl00_leftcolumn_loginuser_logincaptcha_CaptchaImage");
         if (captcha == null) {
             throw new IllegalStateException("No se pudo encontrar el captcha");
         }
@@ -109,7 +154,7 @@ public class SAEScraper implements Serializable {
         // Fetch the captcha image
         response = Jsoup
                 .connect(captcha.absUrl("src")) // Extract image absolute URL
-                .cookies(cookies) // Grab cookies
+                .cookies(loginCookies) // Grab cookies
                 .ignoreContentType(true) // Needed for fetching image
                 .execute();
 
@@ -125,26 +170,28 @@ public class SAEScraper implements Serializable {
      * Key = true si el login fue exitoso, de lo contrario, false
      * Value contiene el mensaje de error si key = false
      * @throws IOException Si existe un error de conexión
+     * @throws IllegalStateException Si la sesión cambió de escuela o se cargó otra página de inicio de sesión
+     * mientras se realizaba la petición
      */
     public Pair<Boolean, String> login(String user, String password, String captcha) throws IOException  {
-        if (workingDocument == null)
-            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
-        if (workingDocument.selectFirst("#ctl00_leftColumn_LogOut") != null){
+        Session session = getSession();
+        Document loginDocument = session.document;
+        if (loginDocument.selectFirst("#ctl00_leftColumn_LogOut") != null){
             throw new IllegalStateException("El formulario de inicio de sesión no existe");
         }
-        String actionUrl = BASE_URL + "Default.aspx?ReturnUrl=%2falumnos%2fdefault.aspx";
+        String actionUrl = session.baseUrl + "Default.aspx?ReturnUrl=%2falumnos%2fdefault.aspx";
 
         // required parameters to login
-        String eventTarget = workingDocument.selectFirst("#__EVENTTARGET").attr("value");
-        String eventArgument = workingDocument.selectFirst("#__EVENTARGUMENT").attr("value");
-        String viewState = workingDocument.selectFirst("#__VIEWSTATE").attr("value");
-        String viewStateGenerator = workingDocument.selectFirst("#__VIEWSTATEGENERATOR").attr("value");
-        String eventValidation = workingDocument.selectFirst("#__EVENTVALIDATION").attr("value");
-        String lbdVCID = workingDocument.selectFirst("#LBD_VCID_c_default_ctl00_leftcolumn_loginuser_logincaptcha").attr("value");
-        String lbdWorkaround = workingDocument.selectFirst("#LBD_BackWorkaround_c_default_ctl00_leftcolumn_loginuser_logincaptcha").attr("value");
-        String loginButton = workingDocument.selectFirst("#ctl00_leftColumn_LoginUser_LoginButton").attr("value");
-
-        Connection connection = Jsoup.connect(actionUrl).cookies(cookies).method(Connection.Method.POST)
+        String eventTarget = loginDocument.selectFirst("#__EVENTTARGET").attr("value");
+        String eventArgument = loginDocument.selectFirst("#__EVENTARGUMENT").attr("value");
+        String viewState = loginDocument.selectFirst("#__VIEWSTATE").attr("value");
+        String viewStateGenerator = loginDocument.selectFirst("#__VIEWSTATEGENERATOR").attr("value");
+        String eventValidation = loginDocument.selectFirst("#__EVENTVALIDATION").attr("value");
+        String lbdVCID = loginDocument.selectFirst("#LBD_VCID_c_default_ctl00_leftcolumn_loginuser_logincaptcha").attr("value");
+        String lbdWorkaround = loginDocument.selectFirst("#LBD_BackWorkaround_c_default_ctl00_leftcolumn_loginuser_logincaptcha").attr("value");
+        String loginButton = loginDocument.selectFirst("#ctl00_leftColumn_LoginUser_LoginButton").attr("value");
+
+        Connection connection = Jsoup.connect(actionUrl).cookies(session.cookies).method(Connection.Method.POST)
                 .userAgent(USER_AGENT)
                 .data("__EVENTTARGET", eventTarget)
                 .data("__EVENTARGUMENT", eventArgument)
@@ -159,20 +206,74 @@ public class SAEScraper implements Serializable {
                 .data("ctl00$leftColumn$LoginUser$LoginButton", loginButton);
 
         Connection.Response response = connection.execute();
-        workingDocument = response.parse();
+        Document responseDocument = response.parse();
+
+        Element error = responseDocument.selectFirst("#ctl00_leftColumn_LoginUser > tbody > tr > td > span");
 
-        Element error = workingDocument.selectFirst("#ctl00_leftColumn_LoginUser > tbody > tr > td > span");
+        commit(session, () -> {
+            workingDocument = responseDocument;
+            if (error == null) {
+                // there is no error, user is logged in
+                // add new generated cookies
+                cookies.putAll(response.cookies());
+            }
+        });
 
-        if (error == null) {
-            // there is no error, user is logged in
-            // add new generated cookies
-            cookies.putAll(response.cookies());
+        if (error == null)
             return new Pair<>(true, "");
-        }
 
         return new Pair<>(false, error.text());
     }
 
+    /**
+     * Realiza el inicio de sesión en SAES resolviendo el captcha con un {@link me.angelvc.saes.scraper.captcha.CaptchaSolver}.
+     * Si el SAES rechaza el captcha se carga uno nuevo y se vuelve a intentar. Cualquier otro error,
+     * como un usuario o contraseña incorrectos, se regresa sin volver a intentar.
+     * @param user Usuario/boleta del alumno
+     * @param password Constraseña del alumno
+     * @param solver Solucionador de captchas
+     * @param maxAttempts Cantidad máxima de intentos
+     * @return Un objeto {@link me.angelvc.saes.scraper.util.Pair} del último intento.
+     * Key = true si el login fue exitoso, de lo contrario, false
+     * Value contiene el mensaje de error si key = false
+     * @throws IOException Si existe un error de conexión o al resolver el captcha
+     */
+    public Pair<Boolean, String> login(String user, String password, CaptchaSolver solver, int maxAttempts) throws IOException {
+        if (solver == null)
+            throw new IllegalArgumentException("El parámetro solver no puede ser null");
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("El parámetro maxAttempts debe ser mayor a 0");
+
+        Pair<Boolean, String> result = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            byte[] captcha = loadLoginPage();
+            result = login(user, password, solver.solve(captcha));
+            if (result.getKey() || !isCaptchaError(result.getValue()))
+                break;
+        }
+
+        return result;
+    }
+
+    /**
+     * @param loginError Mensaje de error del formulario de inicio de sesión
+     * @return true si el error se debe a que el texto del captcha no coincide con la imagen
+     */
+    static boolean isCaptchaError(String loginError) {
+        return loginError != null && CAPTCHA_ERROR.matcher(loginError).find();
+    }
+
+    /**
+     * @return Escuela a la que pertenece la sesión
+     */
+    public synchronized School getSchool() {
+        for (School school : School.values()) {
+            if (school.url.equals(BASE_URL))
+                return school;
+        }
+        return null;
+    }
+
     /**
      * Obtiene el horario del alumno
      * @return Lista de {@link me.angelvc.saes.scraper.models.ScheduleClass}
@@ -180,12 +281,15 @@ public class SAEScraper implements Serializable {
      * @throws SessionExpiredException Si la sesión expiró
      */
     public List<ScheduleClass> getStudentSchedule() throws IOException, SessionExpiredException {
-        if (workingDocument == null)
-            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
+        return singleFlight("schedule", SAEScraper::fetchStudentSchedule);
+    }
+
+    private static List<ScheduleClass> fetchStudentSchedule(Session session) throws IOException, SessionExpiredException {
+        checkDocument(session);
 
-        String scheduleUrl = workingDocument.selectFirst("td > table > tbody > tr > td > a:contains(Horario)")
+        String scheduleUrl = session.document.selectFirst("td > table > tbody > tr > td > a:contains(Horario)")
                 .absUrl("href");
-        Connection connection = Jsoup.connect(scheduleUrl).cookies(cookies)
+        Connection connection = Jsoup.connect(scheduleUrl).cookies(session.cookies)
                 .method(Connection.Method.GET).userAgent(USER_AGENT);
 
         Connection.Response response = connection.execute();
@@ -230,20 +334,10 @@ public class SAEScraper implements Serializable {
      * @throws SessionExpiredException Si la sesión expiró
      */
     public StudentInfo getStudentInfo() throws IOException, SessionExpiredException {
-        if (workingDocument == null)
-            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
-
-        String kardexUrl = workingDocument.selectFirst("table > tbody > tr > td > a:contains(Kárdex)")
-                .absUrl("href");
-
-
-        Connection connection = Jsoup.connect(kardexUrl).cookies(cookies)
-                .method(Connection.Method.GET).userAgent(USER_AGENT);
-
-        Connection.Response response = connection.execute();
-        checkSessionState(kardexUrl, response.url().toString());
+        return extractStudentInfo(singleFlight(KARDEX_PAGE, SAEScraper::fetchKardexDocument));
+    }
 
-        Document studentInfoDocument = response.parse();
+    private static StudentInfo extractStudentInfo(Document studentInfoDocument) {
 
         return new StudentInfo(
                 studentInfoDocument.select("#banner").text(),
@@ -262,20 +356,44 @@ public class SAEScraper implements Serializable {
      * @throws SessionExpiredException Si la sesión expiró
      */
     public Kardex getKardex() throws IOException, SessionExpiredException {
-        if (workingDocument == null)
-            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
+        return extractKardex(singleFlight(KARDEX_PAGE, SAEScraper::fetchKardexDocument), null);
+    }
+
+    /**
+     * Obtiene las calificaciones del kardex reutilizando los niveles de un kardex anterior cuya tabla no cambió.
+     * Solo se extraen las materias de los niveles que cambiaron, los cuales se obtienen con
+     * {@link me.angelvc.saes.scraper.models.Kardex#getChangedLevels()}.
+     * Los niveles que no cambiaron comparten la misma instancia de {@link ArrayList} con el kardex anterior,
+     * por lo que modificar esa lista en uno de los dos kardex la modifica en ambos.
+     * @param previous Kardex obtenido anteriormente de la misma sesión, si es null se obtiene el kardex completo
+     * @return Un objeto {@link me.angelvc.saes.scraper.models.Kardex} con las calificaciones
+     * @throws IOException Si existe un error de conexión
+     * @throws SessionExpiredException Si la sesión expiró
+     */
+    public Kardex getKardex(Kardex previous) throws IOException, SessionExpiredException {
+        if (previous == null)
+            return getKardex();
 
-        String kardexUrl = workingDocument.selectFirst("table > tbody > tr > td > a:contains(Kárdex)")
+        return extractKardex(singleFlight(KARDEX_PAGE, SAEScraper::fetchKardexDocument), previous);
+    }
+
+    private static Document fetchKardexDocument(Session session) throws IOException, SessionExpiredException {
+        checkDocument(session);
+
+        String kardexUrl = session.document.selectFirst("table > tbody > tr > td > a:contains(Kárdex)")
                 .absUrl("href");
 
 
-        Connection connection = Jsoup.connect(kardexUrl).cookies(cookies)
+        Connection connection = Jsoup.connect(kardexUrl).cookies(session.cookies)
                 .method(Connection.Method.GET).userAgent(USER_AGENT);
 
         Connection.Response response = connection.execute();
         checkSessionState(kardexUrl, response.url().toString());
 
-        Document kardexDocument = response.parse();
+        return response.parse();
+    }
+
+    static Kardex extractKardex(Document kardexDocument, Kardex previous) {
         Elements kardexElements = kardexDocument.selectFirst("#ctl00_mainCopy_Lbl_Kardex").select("center");
 
         Kardex kardex = new Kardex();
@@ -283,6 +401,24 @@ public class SAEScraper implements Serializable {
         int levelCount = 1;
         for (Element kardexElement : kardexElements) {
             Elements classesTable = kardexElement.select("table > tbody > tr:nth-child(n+3)");
+            String fingerprint = fingerprint(classesTable);
+            kardex.setLevelFingerprint(levelCount, fingerprint);
+
+            if (previous != null && fingerprint.equals(previous.getLevelFingerprint(levelCount))) {
+                // same table as before, keep the classes already extracted (or keep it absent if it was empty)
+                if (previous.getLevels().contains(levelCount))
+                    kardex.setLevelClasses(levelCount, previous.getLevelClasses(levelCount));
+                levelCount++;
+                continue;
+            }
+
+            if (previous != null) {
+                // a changed level that ended up without classes is kept as empty so it can be read
+                kardex.setLevelClasses(levelCount, new ArrayList<>());
+                kardex.addChangedLevel(levelCount);
+            } else if (!classesTable.isEmpty()) {
+                kardex.addChangedLevel(levelCount);
+            }
 
             for (Element classEntry : classesTable) {
                 String subject = classEntry.selectFirst("td:nth-child(2)").ownText().toLowerCase(); // materia
@@ -300,6 +436,13 @@ public class SAEScraper implements Serializable {
             levelCount++;
         }
 
+        if (previous != null) {
+            for (int level : previous.getLevels()) {
+                if (level >= levelCount)
+                    kardex.addRemovedLevel(level);
+            }
+        }
+
         return kardex;
     }
 
@@ -310,13 +453,16 @@ public class SAEScraper implements Serializable {
      * @throws SessionExpiredException Si la sesión expiró
      */
     public ArrayList<GradeEntry> getGrades() throws IOException, SessionExpiredException {
-        if (workingDocument == null)
-            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
+        return singleFlight("grades", SAEScraper::fetchGrades);
+    }
+
+    private static ArrayList<GradeEntry> fetchGrades(Session session) throws IOException, SessionExpiredException {
+        checkDocument(session);
 
-        String gradesUrl = workingDocument.selectFirst("table > tbody > tr > td > a:contains(Calificaciones)")
+        String gradesUrl = session.document.selectFirst("table > tbody > tr > td > a:contains(Calificaciones)")
                 .absUrl("href");
 
-        Connection connection = Jsoup.connect(gradesUrl).cookies(cookies)
+        Connection connection = Jsoup.connect(gradesUrl).cookies(session.cookies)
                 .method(Connection.Method.GET).ignoreHttpErrors(true).userAgent(USER_AGENT);
 
         Connection.Response response = connection.execute();
@@ -349,6 +495,117 @@ public class SAEScraper implements Serializable {
         return gradeEntries;
     }
 
+    /**
+     * Obtiene una copia del estado de la sesión
+     * @return Estado de la sesión, el documento de trabajo puede ser null
+     */
+    private synchronized Session snapshot() {
+        return new Session(BASE_URL, workingDocument, new HashMap<>(cookies), generation);
+    }
+
+    /**
+     * Obtiene una copia del estado de la sesión
+     * @return Estado de la sesión con el documento de trabajo inicializado
+     */
+    private Session getSession() {
+        Session session = snapshot();
+        checkDocument(session);
+        return session;
+    }
+
+    private static void checkDocument(Session session) {
+        if (session.document == null)
+            throw new IllegalStateException(NULL_DOCUMENT_MESSAGE);
+    }
+
+    /**
+     * Aplica un cambio al estado de la sesión solo si la sesión no cambió desde que se tomó la copia
+     * @param session Copia del estado tomada antes de realizar la petición
+     * @param update Cambio a aplicar
+     * @throws IllegalStateException Si la sesión cambió de escuela o se cargó otra página de inicio de sesión
+     */
+    private synchronized void commit(Session session, Runnable update) {
+        if (generation != session.generation || !BASE_URL.equals(session.baseUrl))
+            throw new IllegalStateException(SESSION_CHANGED_MESSAGE);
+
+        update.run();
+    }
+
+    /**
+     * Ejecuta la petición de una página de la sesión. Si la misma página ya se está solicitando
+     * en otro hilo con el mismo estado de la sesión, espera esa petición y regresa el mismo resultado
+     * en lugar de realizar otra. Las peticiones que iniciaron antes de cambiar de escuela o de cargar
+     * otra página de inicio de sesión no se comparten con las que iniciaron después.
+     * @param page Nombre de la página solicitada
+     * @param request Petición y extracción de la página a partir de la copia del estado de la sesión
+     * @return El resultado de la petición, compartido por todos los hilos que la solicitaron
+     * @throws IOException Si existe un error de conexión o el hilo es interrumpido mientras espera
+     * @throws IllegalStateException Si la petición de la página solicita de nuevo la misma página
+     */
+    <T> T singleFlight(String page, SessionRequest<T> request) throws IOException {
+        Session session = snapshot();
+        return coalesce(page + ':' + session.generation, () -> request.execute(session));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String key, PageRequest<T> request) throws IOException {
+        Call call = new Call();
+        Call running = inFlight.putIfAbsent(key, call);
+
+        if (running != null && running.leader == Thread.currentThread())
+            throw new IllegalStateException("La página " + key + " ya se está solicitando en este hilo");
+
+        if (running == null) {
+            try {
+                call.result.complete(request.execute());
+            } catch (Throwable e) {
+                call.result.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, call);
+            }
+            running = call;
+        }
+
+        try {
+            return (T) running.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("La petición fue interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Calcula la huella SHA-256 de las filas de una tabla a partir del texto propio de cada celda,
+     * que es el mismo texto que se extrae. Las celdas y filas se separan para que mover texto de una
+     * celda a otra cambie la huella.
+     * @param rows Filas de la tabla
+     * @return Huella codificada en Base64
+     */
+    private static String fingerprint(Elements rows) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Element row : rows) {
+                for (Element cell : row.children()) {
+                    digest.update(cell.ownText().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);  // cell delimiter
+                }
+                digest.update((byte) 1);  // row delimiter
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
+    }
+
     /**
      * Verifica si la URL de la petición es la misma que se regresa en la respuesta.
      * Si no son iguales significa que la sesión expiró.
@@ -356,7 +613,7 @@ public class SAEScraper implements Serializable {
      * @param responseUrl String de la URL de la respuesta
      * @throws SessionExpiredException si las URL's son diferentes
      */
-    private void checkSessionState(String requestUrl, String responseUrl) throws SessionExpiredException{
+    private static void checkSessionState(String requestUrl, String responseUrl) throws SessionExpiredException{
         if (! requestUrl.equals(responseUrl))
             throw new SessionExpiredException("La sesión ha expirado");
     }
@@ -365,12 +622,40 @@ public class SAEScraper implements Serializable {
         BASE_URL = inputStream.readUTF();
         cookies = (Map<String, String>) inputStream.readObject();
         workingDocument = Jsoup.parse(inputStream.readUTF());
+        inFlight = new ConcurrentHashMap<>();
     }
 
-    private void writeObject(ObjectOutputStream outputStream) throws IOException {
+    private synchronized void writeObject(ObjectOutputStream outputStream) throws IOException {
         outputStream.writeUTF(BASE_URL);
         outputStream.writeObject(cookies);
         outputStream.writeUTF(workingDocument.html());
     }
 
+    private interface PageRequest<T> {
+        T execute() throws IOException;
+    }
+
+    interface SessionRequest<T> {
+        T execute(Session session) throws IOException;
+    }
+
+    private static class Call {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final Thread leader = Thread.currentThread();
+    }
+
+    static class Session {
+        private final String baseUrl;
+        private final Document document;
+        private final Map<String, String> cookies;
+        private final long generation;
+
+        private Session(String baseUrl, Document document, Map<String, String> cookies, long generation) {
+            this.baseUrl = baseUrl;
+            this.document = document;
+            this.cookies = cookies;
+            this.generation = generation;
+        }
+    }
+
 }
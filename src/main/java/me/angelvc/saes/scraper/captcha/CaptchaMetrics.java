@@ -0,0 +1,71 @@
+package me.angelvc.saes.scraper.captcha;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencia y tasa de éxito de los captchas resueltos para una escuela
+ */
+public class CaptchaMetrics {
+
+    private final LongAdder solved = new LongAdder();
+    private final LongAdder solveNanos = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+
+    void recordSolve(long nanos) {
+        solved.increment();
+        solveNanos.add(nanos);
+    }
+
+    void recordFailure() {
+        failed.increment();
+    }
+
+    void recordSuccess() {
+        successes.increment();
+    }
+
+    public long getSolved() {
+        return solved.sum();
+    }
+
+    /**
+     * @return Captchas que el solucionador no pudo resolver
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    /**
+     * @return Tiempo promedio en milisegundos desde que el captcha entra a la cola hasta que se resuelve.
+     * No incluye la espera por espacio en la cola.
+     */
+    public double getAverageSolveMillis() {
+        long count = solved.sum();
+        return count == 0 ? 0 : solveNanos.sum() / (count * 1_000_000.0);
+    }
+
+    /**
+     * @return Fracción de captchas enviados al solucionador con los que se inició sesión, entre 0 y 1.
+     * Los captchas que el solucionador no pudo resolver cuentan como fallidos.
+     */
+    public double getSuccessRate() {
+        long count = solved.sum() + failed.sum();
+        return count == 0 ? 0 : (double) successes.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptchaMetrics{" +
+                "solved=" + getSolved() +
+                ", averageSolveMillis=" + getAverageSolveMillis() +
+                ", failed=" + getFailed() +
+                ", successes=" + getSuccesses() +
+                ", successRate=" + getSuccessRate() +
+                '}';
+    }
+}
@@ -0,0 +1,32 @@
+package me.angelvc.saes.scraper.captcha;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Obtiene el texto de las imágenes captcha del inicio de sesión del SAES
+ */
+public interface CaptchaSolver {
+
+    /**
+     * @param captcha Arreglo de bytes de la imagen captcha
+     * @return Texto que se muestra en la imagen
+     * @throws IOException Si existe un error al resolver el captcha
+     */
+    String solve(byte[] captcha) throws IOException;
+
+    /**
+     * Resuelve varias imágenes a la vez. Las implementaciones que procesen lotes de forma más eficiente
+     * deben sobrescribir este método.
+     * @param captchas Imágenes captcha
+     * @return Texto de cada imagen, en el mismo orden
+     * @throws IOException Si existe un error al resolver los captchas
+     */
+    default List<String> solve(List<byte[]> captchas) throws IOException {
+        List<String> solutions = new ArrayList<>(captchas.size());
+        for (byte[] captcha : captchas)
+            solutions.add(solve(captcha));
+        return solutions;
+    }
+}
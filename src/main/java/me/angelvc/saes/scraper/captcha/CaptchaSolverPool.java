@@ -0,0 +1,278 @@
+package me.angelvc.saes.scraper.captcha;
+
+import me.angelvc.saes.scraper.SAEScraper;
+import me.angelvc.saes.scraper.School;
+import me.angelvc.saes.scraper.util.Pair;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inicia sesión en varias sesiones del SAES a la vez. Los captchas de todas las sesiones
+ * se envían en lotes a un {@link CaptchaSolver}.
+ * Solo debe usarse con cuentas cuyos dueños autorizaron el inicio de sesión automático.
+ */
+public class CaptchaSolverPool {
+
+    private static final String SHUTDOWN_MESSAGE = "El pool fue detenido";
+
+    private final CaptchaSolver solver;
+    private final LoginFlow loginFlow;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final BlockingQueue<LoginJob> logins;
+    private final BlockingQueue<CaptchaRequest> captchas;
+    private final ExecutorService workers;
+    private final ExecutorService solverThread;
+    private final Map<School, CaptchaMetrics> metrics;
+    private volatile boolean shutdown;
+
+    /**
+     * @param solver Solucionador de captchas
+     * @param workers Cantidad de inicios de sesión simultáneos
+     * @param queueCapacity Cantidad de inicios de sesión que pueden esperar en la cola
+     * @param batchSize Cantidad máxima de captchas que se envían juntos al solucionador
+     * @param maxAttempts Cantidad máxima de intentos por inicio de sesión, cada uno con un captcha nuevo
+     */
+    public CaptchaSolverPool(CaptchaSolver solver, int workers, int queueCapacity, int batchSize, int maxAttempts) {
+        this(solver, workers, queueCapacity, batchSize, maxAttempts, SAEScraper::login);
+    }
+
+    CaptchaSolverPool(CaptchaSolver solver, int workers, int queueCapacity, int batchSize, int maxAttempts,
+                      LoginFlow loginFlow) {
+        if (solver == null)
+            throw new IllegalArgumentException("El parámetro solver no puede ser null");
+        if (workers < 1 || queueCapacity < 1 || batchSize < 1 || maxAttempts < 1)
+            throw new IllegalArgumentException("Los parámetros deben ser mayores a 0");
+
+        this.solver = solver;
+        this.loginFlow = loginFlow;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.logins = new ArrayBlockingQueue<>(queueCapacity);
+        this.captchas = new ArrayBlockingQueue<>(workers);  // each worker waits on at most one captcha
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.solverThread = Executors.newSingleThreadExecutor();
+        this.metrics = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < workers; i++)
+            this.workers.execute(this::runWorker);
+        solverThread.execute(this::runSolver);
+    }
+
+    /**
+     * Agrega un inicio de sesión a la cola. Si la cola está llena espera a que haya espacio.
+     * Las métricas se registran para la escuela de la sesión.
+     * @param session Sesión en la que se inicia sesión, obtenida con {@link SAEScraper#newSession(School)}
+     * @param user Usuario/boleta del alumno
+     * @param password Constraseña del alumno
+     * @return Resultado del último intento de {@link SAEScraper#login(String, String, String)}
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera espacio en la cola
+     * @throws RejectedExecutionException Si el pool fue detenido
+     */
+    public CompletableFuture<Pair<Boolean, String>> submit(SAEScraper session, String user, String password)
+            throws InterruptedException {
+        checkRunning();
+        LoginJob job = new LoginJob(session, user, password);
+        logins.put(job);
+        return accepted(job);
+    }
+
+    /**
+     * Agrega un inicio de sesión a la cola esperando como máximo el tiempo indicado a que haya espacio.
+     * @return Resultado del último intento, o null si la cola siguió llena
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera espacio en la cola
+     * @throws RejectedExecutionException Si el pool fue detenido
+     * @see #submit(SAEScraper, String, String)
+     */
+    public CompletableFuture<Pair<Boolean, String>> submit(SAEScraper session, String user, String password,
+                                                           long timeout, TimeUnit unit) throws InterruptedException {
+        checkRunning();
+        LoginJob job = new LoginJob(session, user, password);
+        return logins.offer(job, timeout, unit) ? accepted(job) : null;
+    }
+
+    /**
+     * @param school Escuela
+     * @return Métricas de los captchas resueltos para la escuela
+     */
+    public CaptchaMetrics getMetrics(School school) {
+        return metrics.computeIfAbsent(school, s -> new CaptchaMetrics());
+    }
+
+    /**
+     * Detiene los hilos del pool. Los inicios de sesión que seguían en la cola se cancelan
+     * y los que se agreguen después son rechazados.
+     */
+    public void shutdown() {
+        shutdown = true;
+        workers.shutdownNow();
+        solverThread.shutdownNow();
+
+        List<LoginJob> pending = new ArrayList<>();
+        logins.drainTo(pending);
+        for (LoginJob job : pending)
+            job.result.cancel(false);
+
+        List<CaptchaRequest> unsolved = new ArrayList<>();
+        captchas.drainTo(unsolved);
+        for (CaptchaRequest request : unsolved)
+            request.solution.cancel(false);
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    int pendingCaptchas() {
+        return captchas.size();
+    }
+
+    private void checkRunning() {
+        if (shutdown)
+            throw new RejectedExecutionException(SHUTDOWN_MESSAGE);
+    }
+
+    /**
+     * Revisa que el pool no se haya detenido mientras el inicio de sesión entraba a la cola,
+     * en ese caso ningún hilo lo tomaría
+     */
+    private CompletableFuture<Pair<Boolean, String>> accepted(LoginJob job) {
+        if (shutdown) {
+            logins.remove(job);
+            job.result.cancel(false);
+            throw new RejectedExecutionException(SHUTDOWN_MESSAGE);
+        }
+        return job.result;
+    }
+
+    private void runWorker() {
+        // the login may swallow the interrupt from shutdown(), so the flag is checked as well
+        while (!shutdown && !Thread.currentThread().isInterrupted()) {
+            LoginJob job;
+            try {
+                job = logins.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (shutdown) {
+                job.result.cancel(false);
+                return;
+            }
+            if (job.result.isDone())
+                continue;
+
+            CaptchaMetrics schoolMetrics = getMetrics(job.school);
+            try {
+                Pair<Boolean, String> result = loginFlow.login(job.session, job.user, job.password,
+                        captcha -> solveInBatch(captcha, schoolMetrics), maxAttempts);
+                if (result.getKey())
+                    schoolMetrics.recordSuccess();
+                job.result.complete(result);
+            } catch (Throwable e) {
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void runSolver() {
+        List<CaptchaRequest> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(captchas.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            captchas.drainTo(batch, batchSize - 1);
+
+            List<byte[]> images = new ArrayList<>(batch.size());
+            for (CaptchaRequest request : batch)
+                images.add(request.image);
+
+            try {
+                List<String> solutions = solver.solve(images);
+                if (solutions == null || solutions.size() != batch.size())
+                    throw new IllegalStateException("El solucionador debe regresar un texto por cada captcha");
+
+                for (int i = 0; i < batch.size(); i++)
+                    batch.get(i).solution.complete(solutions.get(i));
+            } catch (Throwable e) {
+                for (CaptchaRequest request : batch)
+                    request.solution.completeExceptionally(e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Envía el captcha al hilo del solucionador y espera su texto
+     */
+    private String solveInBatch(byte[] captcha, CaptchaMetrics schoolMetrics) throws IOException {
+        CaptchaRequest request = new CaptchaRequest(captcha);
+        try {
+            captchas.put(request);
+            long queuedAt = System.nanoTime();  // after put, waiting for room in the queue is not solve time
+            String solution = request.solution.get();
+            schoolMetrics.recordSolve(System.nanoTime() - queuedAt);
+            return solution;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("El inicio de sesión fue interrumpido");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException(SHUTDOWN_MESSAGE);
+        } catch (ExecutionException e) {
+            schoolMetrics.recordFailure();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException("No se pudo resolver el captcha", e.getCause());
+        }
+    }
+
+    interface LoginFlow {
+        Pair<Boolean, String> login(SAEScraper session, String user, String password, CaptchaSolver solver,
+                                    int maxAttempts) throws IOException;
+    }
+
+    private static class LoginJob {
+        private final School school;
+        private final SAEScraper session;
+        private final String user, password;
+        private final CompletableFuture<Pair<Boolean, String>> result = new CompletableFuture<>();
+
+        private LoginJob(SAEScraper session, String user, String password) {
+            if (session == null)
+                throw new IllegalArgumentException("El parámetro session no puede ser null");
+
+            this.school = session.getSchool();
+            if (school == null)
+                throw new IllegalArgumentException("La sesión no pertenece a ninguna escuela");
+
+            this.session = session;
+            this.user = user;
+            this.password = password;
+        }
+    }
+
+    private static class CaptchaRequest {
+        private final byte[] image;
+        private final CompletableFuture<String> solution = new CompletableFuture<>();
+
+        private CaptchaRequest(byte[] image) {
+            this.image = image;
+        }
+    }
+}
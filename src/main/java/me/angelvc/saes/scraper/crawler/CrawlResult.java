@@ -0,0 +1,53 @@
+package me.angelvc.saes.scraper.crawler;
+
+import me.angelvc.saes.scraper.School;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Resultado de una consulta a varias escuelas. Cada escuela consultada aparece
+ * en los resultados o en los errores, nunca en ambos.
+ * @param <T> Tipo de la información obtenida de cada escuela
+ */
+public class CrawlResult<T> {
+
+    private final Map<School, T> results;
+    private final Map<School, Exception> failures;
+
+    CrawlResult() {
+        results = new EnumMap<>(School.class);
+        failures = new EnumMap<>(School.class);
+    }
+
+    void addResult(School school, T result) {
+        results.put(school, result);
+    }
+
+    void addFailure(School school, Exception failure) {
+        failures.put(school, failure);
+    }
+
+    /**
+     * @return Información de las escuelas cuya petición fue exitosa
+     */
+    public Map<School, T> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return Error de conexión o de lectura de cada escuela cuya petición falló
+     */
+    public Map<School, Exception> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlResult{" +
+                "results=" + results +
+                ", failures=" + failures +
+                '}';
+    }
+}
@@ -0,0 +1,303 @@
+package me.angelvc.saes.scraper.crawler;
+
+import me.angelvc.saes.scraper.School;
+import me.angelvc.saes.scraper.models.GroupOccupancy;
+import me.angelvc.saes.scraper.models.ScheduleClass;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Obtiene las páginas públicas del SAES (horarios y ocupabilidad) de varias escuelas de forma concurrente.
+ * No requiere iniciar sesión.
+ */
+public class PublicPageCrawler {
+
+    private static final String USER_AGENT = "Chrome/81.0.4044.138";
+    private static final String SCHEDULES_PATH = "Academica/horarios.aspx";
+    private static final String OCCUPANCY_PATH = "Academica/Ocupabilidad_grupos.aspx";
+
+    private final ExecutorService executor;
+    private final PageFetcher fetcher;
+    private final Map<School, Baseline> lastOccupancy;  // last poll per school, used to detect changes
+    private final AtomicLong polls;  // orders overlapping getOccupancyChanges() calls by the time they started
+
+    /**
+     * @param threads Cantidad de peticiones simultáneas en total
+     * @param maxRequestsPerHost Cantidad de peticiones simultáneas permitidas hacia una misma escuela
+     * @param timeoutSeconds La cantidad de segundos a esperar al realizar cada petición
+     */
+    public PublicPageCrawler(int threads, int maxRequestsPerHost, int timeoutSeconds) {
+        this(threads, new HostLimitedFetcher(maxRequestsPerHost, timeoutSeconds));
+    }
+
+    public PublicPageCrawler() {
+        this(8, 2, 15);
+    }
+
+    PublicPageCrawler(int threads, PageFetcher fetcher) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Los parámetros deben ser mayores a 0");
+
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.fetcher = fetcher;
+        this.lastOccupancy = new ConcurrentHashMap<>();
+        this.polls = new AtomicLong();
+    }
+
+    /**
+     * Obtiene los horarios de los grupos de cada escuela.
+     * @param schools Escuelas a consultar
+     * @return Lista de {@link me.angelvc.saes.scraper.models.ScheduleClass} por escuela y el error de cada escuela
+     * cuya petición falló
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera los resultados
+     */
+    public CrawlResult<List<ScheduleClass>> getSchedules(Collection<School> schools) throws InterruptedException {
+        return crawl(schools, SCHEDULES_PATH, (school, document) -> parseSchedules(document));
+    }
+
+    /**
+     * Obtiene la ocupabilidad completa de los grupos de cada escuela.
+     * No modifica la consulta anterior con la que compara {@link #getOccupancyChanges(Collection)}.
+     * @param schools Escuelas a consultar
+     * @return Lista de {@link me.angelvc.saes.scraper.models.GroupOccupancy} por escuela y el error de cada escuela
+     * cuya petición falló
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera los resultados
+     */
+    public CrawlResult<List<GroupOccupancy>> getOccupancy(Collection<School> schools) throws InterruptedException {
+        return crawl(schools, OCCUPANCY_PATH, (school, document) -> parseOccupancy(document));
+    }
+
+    /**
+     * Obtiene únicamente las filas de ocupabilidad que son nuevas o cuyos lugares cambiaron desde la consulta
+     * anterior de la misma escuela. En la primera consulta de una escuela se regresan todas las filas.
+     * Las filas que desaparecen entre consultas (grupos cerrados o eliminados) no se reportan.
+     * Las escuelas cuya petición falle conservan su consulta anterior. Si dos llamadas se traslapan,
+     * la que inició primero no reemplaza la consulta anterior guardada por la que inició después.
+     * @param schools Escuelas a consultar
+     * @return Lista de {@link me.angelvc.saes.scraper.models.GroupOccupancy} que cambiaron por escuela y el error
+     * de cada escuela cuya petición falló
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera los resultados
+     */
+    public CrawlResult<List<GroupOccupancy>> getOccupancyChanges(Collection<School> schools) throws InterruptedException {
+        long poll = polls.incrementAndGet();
+        return crawl(schools, OCCUPANCY_PATH,
+                (school, document) -> diffOccupancy(school, parseOccupancy(document), poll));
+    }
+
+    /**
+     * Olvida las consultas de ocupabilidad anteriores, la siguiente consulta regresará todas las filas
+     */
+    public void clearOccupancy() {
+        lastOccupancy.clear();
+    }
+
+    /**
+     * Detiene los hilos del crawler. No se pueden realizar más consultas después de llamar a este método.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> CrawlResult<T> crawl(Collection<School> schools, String path, PageParser<T> parser)
+            throws InterruptedException {
+        if (schools == null)
+            throw new IllegalArgumentException("El parámetro schools no puede ser null");
+
+        Map<School, Future<T>> pending = new LinkedHashMap<>();
+        for (School school : new LinkedHashSet<>(schools)) {  // each school is requested once
+            pending.put(school, executor.submit(() -> {
+                Document document = fetcher.fetch(school.url + path);
+                if (Thread.interrupted())  // the poll was abandoned while the page was loading
+                    throw new InterruptedException();
+                return parser.parse(school, document);
+            }));
+        }
+
+        CrawlResult<T> result = new CrawlResult<>();
+        try {
+            for (Map.Entry<School, Future<T>> entry : pending.entrySet()) {
+                try {
+                    result.addResult(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    result.addFailure(entry.getKey(), cause instanceof Exception ? (Exception) cause : e);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<T> future : pending.values())
+                future.cancel(true);
+            throw e;
+        }
+
+        return result;
+    }
+
+    List<GroupOccupancy> diffOccupancy(School school, List<GroupOccupancy> occupancy) {
+        return diffOccupancy(school, occupancy, polls.incrementAndGet());
+    }
+
+    /**
+     * Compara la ocupabilidad con la consulta anterior de la escuela y la guarda como la nueva consulta anterior.
+     * La comparación y el reemplazo se realizan de forma atómica para cada escuela. Si una consulta que inició
+     * después ya reemplazó la consulta anterior, la ocupabilidad se descarta por ser más antigua.
+     * @param poll Número de la consulta, mayor para las consultas que iniciaron después
+     * @return Filas nuevas o cuyos lugares cambiaron
+     */
+    List<GroupOccupancy> diffOccupancy(School school, List<GroupOccupancy> occupancy, long poll) {
+        List<GroupOccupancy> changes = new ArrayList<>();
+        lastOccupancy.compute(school, (key, previous) -> {
+            if (previous != null && previous.poll > poll)
+                return previous;  // a newer poll already answered, this one is stale
+
+            for (GroupOccupancy row : occupancy) {
+                if (previous == null || !row.hasSameSeats(previous.rows.get(row.getKey())))
+                    changes.add(row);
+            }
+            return new Baseline(poll, indexByKey(occupancy));
+        });
+        return changes;
+    }
+
+    static List<ScheduleClass> parseSchedules(Document document) {
+        List<ScheduleClass> schedules = new ArrayList<>();
+        Element table = document.selectFirst("#ctl00_mainCopy_dbgHorarios");
+        if (table == null)
+            return schedules;
+
+        for (Element row : table.select("tr:nth-child(n+2)")) {
+            Elements cells = row.children();
+            if (cells.size() < 11)
+                continue;
+
+            schedules.add(new ScheduleClass(
+                    cells.get(0).text(),  // grupo
+                    cells.get(1).text(),  // materia
+                    cells.get(2).text(),  // profesor
+                    cells.get(3).text(),  // edificio
+                    cells.get(4).text(),  // salon
+                    new String[]{
+                            cells.get(5).text(),  // Lunes
+                            cells.get(6).text(),  // Martes
+                            cells.get(7).text(),  // Miércoles
+                            cells.get(8).text(),  // Jueves
+                            cells.get(9).text(),  // Viernes
+                            cells.get(10).text(), // Sábado
+                    }  // horario
+            ));
+        }
+
+        return schedules;
+    }
+
+    static List<GroupOccupancy> parseOccupancy(Document document) {
+        List<GroupOccupancy> occupancy = new ArrayList<>();
+        Element table = document.selectFirst("#ctl00_mainCopy_GrvOcupabilidad");
+        if (table == null)
+            return occupancy;
+
+        for (Element row : table.select("tr:nth-child(n+2)")) {
+            Elements cells = row.children();
+            if (cells.size() < 7)
+                continue;
+
+            try {
+                occupancy.add(new GroupOccupancy(
+                        cells.get(0).text(),  // grupo
+                        cells.get(1).text(),  // clave
+                        cells.get(2).text(),  // materia
+                        cells.get(3).text(),  // semestre
+                        Integer.parseInt(cells.get(4).text().trim()),  // cupo
+                        Integer.parseInt(cells.get(5).text().trim()),  // inscritos
+                        Integer.parseInt(cells.get(6).text().trim())   // disponibles
+                ));
+            } catch (NumberFormatException e) {
+                // pager or summary row, not a group
+            }
+        }
+
+        return occupancy;
+    }
+
+    private static Map<String, GroupOccupancy> indexByKey(List<GroupOccupancy> occupancy) {
+        Map<String, GroupOccupancy> index = new HashMap<>();
+        for (GroupOccupancy row : occupancy)
+            index.put(row.getKey(), row);
+        return index;
+    }
+
+    private static class Baseline {
+        private final long poll;
+        private final Map<String, GroupOccupancy> rows;
+
+        private Baseline(long poll, Map<String, GroupOccupancy> rows) {
+            this.poll = poll;
+            this.rows = rows;
+        }
+    }
+
+    private interface PageParser<T> {
+        T parse(School school, Document document);
+    }
+
+    interface PageFetcher {
+        Document fetch(String url) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Realiza las peticiones respetando el límite de peticiones simultáneas hacia el mismo servidor
+     */
+    private static class HostLimitedFetcher implements PageFetcher {
+
+        private final int maxRequestsPerHost;
+        private final int timeoutSeconds;
+        private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+        private HostLimitedFetcher(int maxRequestsPerHost, int timeoutSeconds) {
+            if (maxRequestsPerHost < 1 || timeoutSeconds < 1)
+                throw new IllegalArgumentException("Los parámetros deben ser mayores a 0");
+
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        @Override
+        public Document fetch(String url) throws IOException, InterruptedException {
+            Semaphore permits = hostPermits.computeIfAbsent(hostOf(url), host -> new Semaphore(maxRequestsPerHost));
+            permits.acquire();
+            try {
+                Connection connection = Jsoup.connect(url)
+                        .method(Connection.Method.GET)
+                        .userAgent(USER_AGENT)
+                        .timeout(timeoutSeconds * 1000);
+                return connection.execute().parse();
+            } finally {
+                permits.release();
+            }
+        }
+
+        private static String hostOf(String url) {
+            int start = url.indexOf("://") + 3;
+            int end = url.indexOf('/', start);
+            return end < 0 ? url.substring(start) : url.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package me.angelvc.saes.scraper.models;
+
+public class GroupOccupancy {
+
+    private final String group, code, name, semester;
+    private final int capacity, enrolled, available;
+
+    public GroupOccupancy(String group, String code, String name, String semester, int capacity, int enrolled, int available) {
+        this.group = group;
+        this.code = code;
+        this.name = name;
+        this.semester = semester;
+        this.capacity = capacity;
+        this.enrolled = enrolled;
+        this.available = available;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSemester() {
+        return semester;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getEnrolled() {
+        return enrolled;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * Identifica la fila dentro de la tabla de ocupabilidad de una escuela
+     * @return Grupo y clave de la materia
+     */
+    public String getKey() {
+        return group + "|" + code;
+    }
+
+    /**
+     * Compara los lugares de dos filas de ocupabilidad
+     * @param other Fila con la que se compara
+     * @return true si el cupo, inscritos y disponibles son iguales
+     */
+    public boolean hasSameSeats(GroupOccupancy other) {
+        return other != null && capacity == other.capacity && enrolled == other.enrolled
+                && available == other.available;
+    }
+
+    @Override
+    public String toString() {
+        return "GroupOccupancy{" +
+                "group='" + group + '\'' +
+                ", code='" + code + '\'' +
+                ", name='" + name + '\'' +
+                ", semester='" + semester + '\'' +
+                ", capacity=" + capacity +
+                ", enrolled=" + enrolled +
+                ", available=" + available +
+                '}';
+    }
+}
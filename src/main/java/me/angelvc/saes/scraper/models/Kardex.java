@@ -5,9 +5,15 @@ import java.util.*;
 public class Kardex {
 
     private final HashMap<Integer, ArrayList<KardexClass>> kardex;
+    private final HashMap<Integer, String> fingerprints;  // hash of each level's table as read from SAES
+    private final Set<Integer> changedLevels;
+    private final Set<Integer> removedLevels;
 
     public Kardex() {
         kardex = new LinkedHashMap<>();
+        fingerprints = new HashMap<>();
+        changedLevels = new TreeSet<>();
+        removedLevels = new TreeSet<>();
     }
 
     public void addClass(int level, KardexClass kardexClass) {
@@ -17,6 +23,15 @@ public class Kardex {
         kardex.get(level).add(kardexClass);
     }
 
+    /**
+     * Asigna las materias de un nivel, reemplazando las que tuviera
+     * @param level Nivel del kardex
+     * @param classes Materias del nivel
+     */
+    public void setLevelClasses(int level, ArrayList<KardexClass> classes) {
+        kardex.put(level, classes);
+    }
+
     public int size() {
         return kardex.size();
     }
@@ -33,6 +48,43 @@ public class Kardex {
         return kardex.keySet();
     }
 
+    public void setLevelFingerprint(int level, String fingerprint) {
+        fingerprints.put(level, fingerprint);
+    }
+
+    /**
+     * @param level Nivel del kardex
+     * @return Huella de la tabla del nivel, null si el nivel no fue leído del SAES
+     */
+    public String getLevelFingerprint(int level) {
+        return fingerprints.get(level);
+    }
+
+    public void addChangedLevel(int level) {
+        changedLevels.add(level);
+    }
+
+    /**
+     * @return Niveles nuevos o cuyo contenido cambió respecto al kardex anterior.
+     * Si no hubo kardex anterior contiene todos los niveles, los niveles sin materias no se incluyen.
+     * Todos los niveles del conjunto están en {@link #getLevels()}, un nivel que cambió y se quedó sin
+     * materias tiene una lista vacía.
+     */
+    public Set<Integer> getChangedLevels() {
+        return Collections.unmodifiableSet(changedLevels);
+    }
+
+    public void addRemovedLevel(int level) {
+        removedLevels.add(level);
+    }
+
+    /**
+     * @return Niveles del kardex anterior que ya no existen, ninguno de ellos está en {@link #getLevels()}
+     */
+    public Set<Integer> getRemovedLevels() {
+        return Collections.unmodifiableSet(removedLevels);
+    }
+
     @Override
     public String toString() {
         return "Kardex{" +
@@ -0,0 +1,221 @@
+package me.angelvc.saes.scraper;
+
+import me.angelvc.saes.scraper.models.Kardex;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SAEScraperTest {
+
+    private static final String[][] FIRST_LEVEL = {
+            {"C101", "CALCULO", "10/06/2019", "19/2", "ORD", "9"},
+            {"C102", "FISICA", "10/06/2019", "19/2", "ORD", "8"}
+    };
+
+    @Test
+    void concurrentCallsShareOneRequest() throws Exception {
+        SAEScraper session = SAEScraper.newSession(School.ESCOM);
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> session.singleFlight("grades", state -> {
+                    requests.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return new Object();
+                })));
+            }
+
+            // let every caller reach singleFlight before the leader finishes
+            Thread.sleep(200);
+            release.countDown();
+
+            Object first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Object> result : results)
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            assertEquals(1, requests.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedRequestIsNotCachedForLaterCalls() throws IOException {
+        SAEScraper session = SAEScraper.newSession(School.ESCOM);
+        IOException timeout = new IOException("Read timed out");
+
+        assertSame(timeout, assertThrows(IOException.class,
+                () -> session.singleFlight("kardexPage", state -> { throw timeout; })));
+        assertEquals("ok", session.singleFlight("kardexPage", state -> "ok"));
+    }
+
+    @Test
+    void differentPagesDoNotWaitForEachOther() throws IOException {
+        SAEScraper session = SAEScraper.newSession(School.ESCOM);
+
+        String outer = session.singleFlight("kardexPage",
+                state -> session.singleFlight("grades", inner -> "grades") + " kardex");
+
+        assertEquals("grades kardex", outer);
+    }
+
+    @Test
+    void samePageRequestedFromItsOwnRequestIsRejected() {
+        SAEScraper session = SAEScraper.newSession(School.ESCOM);
+
+        assertThrows(IllegalStateException.class, () -> session.singleFlight("grades",
+                state -> session.singleFlight("grades", inner -> "grades")));
+    }
+
+    @Test
+    void requestStartedBeforeSwitchingSchoolIsNotShared() throws Exception {
+        SAEScraper scraper = SAEScraper.getInstance(School.ESCOM);
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> escom = callers.submit(() -> scraper.singleFlight("grades", state -> {
+                requests.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return "escom";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // switching school resets the session while the ESCOM request is still running
+            SAEScraper.getInstance(School.UPIICSA);
+            Future<String> upiicsa = callers.submit(() -> scraper.singleFlight("grades", state -> {
+                requests.incrementAndGet();
+                return "upiicsa";
+            }));
+
+            assertEquals("upiicsa", upiicsa.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals("escom", escom.get(5, TimeUnit.SECONDS));
+            assertEquals(2, requests.get());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Página de kardex con un bloque center por nivel, cada nivel es una lista de filas de 6 celdas
+     */
+    private static Document kardexPage(String[][]... levels) {
+        StringBuilder html = new StringBuilder("<span id='ctl00_mainCopy_Lbl_Kardex'>");
+        for (String[][] level : levels) {
+            html.append("<center><table><tbody><tr><td>NIVEL</td></tr><tr><td>CLAVE</td><td>MATERIA</td></tr>");
+            for (String[] row : level) {
+                html.append("<tr>");
+                for (String cell : row)
+                    html.append("<td>").append(cell).append("</td>");
+                html.append("</tr>");
+            }
+            html.append("</tbody></table></center>");
+        }
+        return Jsoup.parse(html.append("</span>").toString());
+    }
+
+    @Test
+    void incrementalKardexReusesUnchangedLevels() {
+        Kardex first = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL,
+                new String[][]{{"C201", "REDES", "", "20/1", "ORD", "6"}}), null);
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), first.getChangedLevels());
+
+        Kardex second = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL,
+                new String[][]{{"C201", "REDES", "", "20/1", "ORD", "7"}}), first);
+
+        assertSame(first.getLevelClasses(1), second.getLevelClasses(1));
+        assertEquals(Collections.singleton(2), second.getChangedLevels());
+        assertEquals("7", second.getLevelClasses(2).get(0).getGrade());
+        assertEquals("Redes", second.getLevelClasses(2).get(0).getName());
+        assertTrue(second.getRemovedLevels().isEmpty());
+    }
+
+    @Test
+    void newEmptyLevelIsReportedWithEmptyClasses() {
+        Kardex first = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL), null);
+        Kardex second = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL, new String[0][]), first);
+
+        assertEquals(Collections.singleton(2), second.getChangedLevels());
+        for (int level : second.getChangedLevels())
+            assertTrue(second.getLevelClasses(level).isEmpty());
+    }
+
+    @Test
+    void fullKardexLeavesOutEmptyLevels() {
+        Kardex full = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL, new String[0][]), null);
+
+        assertEquals(1, full.size());
+        assertEquals(Collections.singleton(1), full.getLevels());
+        assertEquals(Collections.singleton(1), full.getChangedLevels());
+
+        Kardex refreshed = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL, new String[0][]), full);
+        assertTrue(refreshed.getChangedLevels().isEmpty());
+        assertEquals(full.getLevels(), refreshed.getLevels());
+    }
+
+    @Test
+    void removedLevelsAreReportedApart() {
+        Kardex first = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL, FIRST_LEVEL), null);
+        Kardex second = SAEScraper.extractKardex(kardexPage(FIRST_LEVEL), first);
+
+        assertTrue(second.getChangedLevels().isEmpty());
+        assertEquals(Collections.singleton(2), second.getRemovedLevels());
+        assertFalse(second.getLevels().contains(2));
+    }
+
+    @Test
+    void textMovedBetweenCellsChangesFingerprint() {
+        Kardex first = SAEScraper.extractKardex(kardexPage(
+                new String[][]{{"C101", "CALCULO", "", "19/2 EXT", "ORD", "9"}}), null);
+        Kardex second = SAEScraper.extractKardex(kardexPage(
+                new String[][]{{"C101", "CALCULO", "", "19/2", "EXT ORD", "9"}}), first);
+
+        assertNotEquals(first.getLevelFingerprint(1), second.getLevelFingerprint(1));
+        assertEquals(Collections.singleton(1), second.getChangedLevels());
+        assertEquals("EXT ORD", second.getLevelClasses(1).get(0).getEvaluationType());
+    }
+
+    @Test
+    void onlyCaptchaMismatchIsRetried() {
+        assertTrue(SAEScraper.isCaptchaError("El código de verificación es incorrecto"));
+        assertTrue(SAEScraper.isCaptchaError("CAPTCHA incorrecto"));
+        assertFalse(SAEScraper.isCaptchaError("Usuario o contraseña incorrectos"));
+        assertFalse(SAEScraper.isCaptchaError(null));
+    }
+
+    @Test
+    void sessionKnowsItsSchool() {
+        assertEquals(School.UPIICSA, SAEScraper.newSession(School.UPIICSA).getSchool());
+    }
+}
@@ -0,0 +1,127 @@
+package me.angelvc.saes.scraper.captcha;
+
+import me.angelvc.saes.scraper.SAEScraper;
+import me.angelvc.saes.scraper.School;
+import me.angelvc.saes.scraper.util.Pair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptchaSolverPoolTest {
+
+    // logs in as soon as the captcha is solved, without touching the network
+    private static final CaptchaSolverPool.LoginFlow SOLVE_ONCE = (session, user, password, solver, maxAttempts) -> {
+        solver.solve(new byte[]{1});
+        return new Pair<>(true, "");
+    };
+
+    private CaptchaSolverPool pool;
+
+    @AfterEach
+    void shutdownPool() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    @Test
+    void captchasWaitingWhileTheSolverIsBusyGoInOneBatch() throws Exception {
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch solving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CaptchaSolver solver = new CaptchaSolver() {
+            @Override
+            public String solve(byte[] captcha) {
+                return "abc";
+            }
+
+            @Override
+            public List<String> solve(List<byte[]> captchas) throws IOException {
+                batches.add(captchas.size());
+                solving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                List<String> solutions = new ArrayList<>();
+                for (byte[] captcha : captchas)
+                    solutions.add(solve(captcha));
+                return solutions;
+            }
+        };
+        pool = new CaptchaSolverPool(solver, 4, 10, 4, 1, SOLVE_ONCE);
+
+        List<CompletableFuture<Pair<Boolean, String>>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            results.add(pool.submit(SAEScraper.newSession(School.ESCOM), "user" + i, "secret"));
+
+        assertTrue(solving.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batches.get(0) + pool.pendingCaptchas() < 4 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        release.countDown();
+
+        for (CompletableFuture<Pair<Boolean, String>> result : results)
+            assertTrue(result.get(5, TimeUnit.SECONDS).getKey());
+        assertTrue(batches.size() <= 2);
+        assertEquals(4, batches.stream().mapToInt(Integer::intValue).sum());
+
+        CaptchaMetrics metrics = pool.getMetrics(School.ESCOM);
+        assertEquals(4, metrics.getSolved());
+        assertEquals(4, metrics.getSuccesses());
+        assertEquals(1.0, metrics.getSuccessRate(), 0.0001);
+    }
+
+    @Test
+    void solverFailuresCountAgainstSuccessRate() throws Exception {
+        pool = new CaptchaSolverPool(captcha -> { throw new IOException("modelo no disponible"); },
+                1, 1, 1, 1, SOLVE_ONCE);
+
+        CompletableFuture<Pair<Boolean, String>> result = pool.submit(SAEScraper.newSession(School.ESIME_ZAC), "u", "p");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals("modelo no disponible", failure.getCause().getMessage());
+        CaptchaMetrics metrics = pool.getMetrics(School.ESIME_ZAC);
+        assertEquals(1, metrics.getFailed());
+        assertEquals(0.0, metrics.getSuccessRate(), 0.0001);
+        assertEquals(0, pool.getMetrics(School.ESCOM).getFailed());
+    }
+
+    @Test
+    void shutdownCancelsQueuedLoginsAndRejectsNewOnes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        pool = new CaptchaSolverPool(captcha -> "abc", 1, 5, 1, 1, (session, user, password, solver, maxAttempts) -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();  // only an interrupt gets out of here
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new Pair<>(true, "");
+        });
+
+        CompletableFuture<Pair<Boolean, String>> running = pool.submit(SAEScraper.newSession(School.ESCOM), "a", "p");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Pair<Boolean, String>> queued = pool.submit(SAEScraper.newSession(School.ESCOM), "b", "p");
+
+        pool.shutdown();
+
+        assertTrue(queued.isCancelled());
+        assertThrows(ExecutionException.class, () -> running.get(5, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class,
+                () -> pool.submit(SAEScraper.newSession(School.ESCOM), "c", "p"));
+        assertThrows(RejectedExecutionException.class,
+                () -> pool.submit(SAEScraper.newSession(School.ESCOM), "c", "p", 1, TimeUnit.SECONDS));
+    }
+}
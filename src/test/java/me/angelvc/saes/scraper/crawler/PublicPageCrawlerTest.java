@@ -0,0 +1,171 @@
+package me.angelvc.saes.scraper.crawler;
+
+import me.angelvc.saes.scraper.School;
+import me.angelvc.saes.scraper.models.GroupOccupancy;
+import me.angelvc.saes.scraper.models.ScheduleClass;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PublicPageCrawlerTest {
+
+    private static final String OCCUPANCY = "<table id='ctl00_mainCopy_GrvOcupabilidad'>" +
+            "<tr><th>Grupo</th><th>Clave</th><th>Materia</th><th>Semestre</th><th>Cupo</th><th>Inscritos</th><th>Disponibles</th></tr>" +
+            "<tr><td>3CM1</td><td>C101</td><td>Cálculo</td><td>3</td><td>40</td><td>35</td><td>5</td></tr>" +
+            "<tr><td>3CM2</td><td>C101</td><td>Cálculo</td><td>3</td><td>40</td><td>40</td><td>0</td></tr>" +
+            "<tr><td colspan='7'>1 2 3</td></tr>" +
+            "</table>";
+
+    private PublicPageCrawler crawler;
+
+    @AfterEach
+    void shutdownCrawler() {
+        if (crawler != null)
+            crawler.shutdown();
+    }
+
+    @Test
+    void parsesOccupancyRowsAndSkipsPager() {
+        List<GroupOccupancy> rows = PublicPageCrawler.parseOccupancy(Jsoup.parse(OCCUPANCY));
+
+        assertEquals(2, rows.size());
+        assertEquals("3CM1", rows.get(0).getGroup());
+        assertEquals("C101", rows.get(0).getCode());
+        assertEquals(40, rows.get(0).getCapacity());
+        assertEquals(35, rows.get(0).getEnrolled());
+        assertEquals(5, rows.get(0).getAvailable());
+    }
+
+    @Test
+    void parsesSchedulesWithSaturday() {
+        Document document = Jsoup.parse("<table id='ctl00_mainCopy_dbgHorarios'>" +
+                "<tr><th>Grupo</th></tr>" +
+                "<tr><td>1CV1</td><td>Física</td><td>Pérez</td><td>A</td><td>101</td>" +
+                "<td>7:00 - 8:30</td><td></td><td>7:00 - 8:30</td><td></td><td></td><td>9:00 - 11:00</td></tr>" +
+                "</table>");
+
+        List<ScheduleClass> schedules = PublicPageCrawler.parseSchedules(document);
+
+        assertEquals(1, schedules.size());
+        assertEquals("Pérez", schedules.get(0).getProfessor());
+        assertEquals(6, schedules.get(0).getSchedule().length);
+        assertEquals("9:00 - 11:00", schedules.get(0).getSchedule()[5]);
+    }
+
+    @Test
+    void reportsOnlyRowsWhoseSeatsChanged() {
+        crawler = new PublicPageCrawler(1, url -> { throw new IOException("sin red"); });
+        List<GroupOccupancy> first = PublicPageCrawler.parseOccupancy(Jsoup.parse(OCCUPANCY));
+        assertEquals(2, crawler.diffOccupancy(School.ESCOM, first).size());
+
+        List<GroupOccupancy> second = Arrays.asList(
+                new GroupOccupancy("3CM1", "C101", "Cálculo", "3", 40, 36, 4),
+                new GroupOccupancy("3CM2", "C101", "Cálculo", "3", 40, 40, 0),
+                new GroupOccupancy("3CM3", "C101", "Cálculo", "3", 30, 0, 30));
+        List<GroupOccupancy> changes = crawler.diffOccupancy(School.ESCOM, second);
+
+        assertEquals(2, changes.size());
+        assertEquals("3CM1", changes.get(0).getGroup());
+        assertEquals("3CM3", changes.get(1).getGroup());
+        assertTrue(crawler.diffOccupancy(School.ESCOM, second).isEmpty());
+        assertEquals(3, crawler.diffOccupancy(School.UPIICSA, second).size());
+    }
+
+    @Test
+    void olderPollDoesNotReplaceNewerBaseline() {
+        crawler = new PublicPageCrawler(1, url -> { throw new IOException("sin red"); });
+        List<GroupOccupancy> older = PublicPageCrawler.parseOccupancy(Jsoup.parse(OCCUPANCY));
+        List<GroupOccupancy> newer = Collections.singletonList(
+                new GroupOccupancy("3CM1", "C101", "Cálculo", "3", 40, 39, 1));
+
+        assertEquals(1, crawler.diffOccupancy(School.ESCOM, newer, 2).size());
+        assertTrue(crawler.diffOccupancy(School.ESCOM, older, 1).isEmpty());
+        assertTrue(crawler.diffOccupancy(School.ESCOM, newer, 3).isEmpty());
+    }
+
+    @Test
+    void duplicateSchoolsAreRequestedOnce() throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        crawler = new PublicPageCrawler(2, url -> {
+            requests.incrementAndGet();
+            return Jsoup.parse(OCCUPANCY);
+        });
+
+        CrawlResult<List<GroupOccupancy>> result = crawler.getOccupancyChanges(
+                Arrays.asList(School.ESCOM, School.ESCOM));
+
+        assertEquals(1, requests.get());
+        assertEquals(2, result.getResults().get(School.ESCOM).size());
+    }
+
+    @Test
+    void fullOccupancyDoesNotReplaceBaseline() throws InterruptedException {
+        crawler = new PublicPageCrawler(2, url -> Jsoup.parse(OCCUPANCY));
+        List<School> schools = Collections.singletonList(School.ESCOM);
+
+        assertEquals(2, crawler.getOccupancy(schools).getResults().get(School.ESCOM).size());
+        assertEquals(2, crawler.getOccupancyChanges(schools).getResults().get(School.ESCOM).size());
+        assertTrue(crawler.getOccupancyChanges(schools).getResults().get(School.ESCOM).isEmpty());
+    }
+
+    @Test
+    void reportsFailedSchools() throws InterruptedException {
+        IOException timeout = new IOException("Read timed out");
+        crawler = new PublicPageCrawler(2, url -> {
+            if (url.startsWith(School.ESCOM.url))
+                throw timeout;
+            return Jsoup.parse(OCCUPANCY);
+        });
+
+        CrawlResult<List<GroupOccupancy>> result = crawler.getOccupancy(Arrays.asList(School.ESCOM, School.UPIICSA));
+
+        assertEquals(Collections.singleton(School.UPIICSA), result.getResults().keySet());
+        assertSame(timeout, result.getFailures().get(School.ESCOM));
+        assertFalse(result.getFailures().containsKey(School.UPIICSA));
+    }
+
+    @Test
+    void interruptedPollCancelsPendingSchools() throws InterruptedException {
+        CountDownLatch fetching = new CountDownLatch(1);
+        AtomicBoolean block = new AtomicBoolean(true);
+        crawler = new PublicPageCrawler(1, url -> {
+            if (block.get()) {
+                fetching.countDown();
+                new CountDownLatch(1).await();  // only an interrupt gets out of here
+            }
+            return Jsoup.parse(OCCUPANCY);
+        });
+        List<School> schools = Collections.singletonList(School.ESCOM);
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread poll = new Thread(() -> {
+            try {
+                crawler.getOccupancyChanges(schools);
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        poll.start();
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+        poll.interrupt();
+        poll.join(5000);
+        assertTrue(thrown.get() instanceof InterruptedException);
+
+        // the cancelled poll frees the only worker and leaves no baseline behind
+        block.set(false);
+        assertEquals(2, crawler.getOccupancyChanges(schools).getResults().get(School.ESCOM).size());
+    }
+}